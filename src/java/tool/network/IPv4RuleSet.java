@@ -0,0 +1,192 @@
+package tool.network;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 编译后的不可变IP规则集合，线程安全。规则为完整的IP地址或CIDR表示法的IP段，前缀长度为
+ * 0~32；只有CIDR规则的地址部分可以不完整，按 {@link IPv4Util#fillIP(String)} 补齐（如
+ * 10.1/16），不带前缀的不完整地址（如10.1）视为无效规则。编译时合并为有序的地址区间，
+ * 判断时使用二分查找，不随规则数量线性增长。
+ */
+public final class IPv4RuleSet {
+    public static final IPv4RuleSet EMPTY = new IPv4RuleSet(new long[0],
+            new long[0], 0, Collections.<String> emptyList());
+
+    private final long[] starts;
+
+    private final long[] ends;
+
+    private final int ruleCount;
+
+    private final List<String> rejectedRules;
+
+    private IPv4RuleSet(long[] starts, long[] ends, int ruleCount,
+            List<String> rejectedRules) {
+        this.starts = starts;
+        this.ends = ends;
+        this.ruleCount = ruleCount;
+        this.rejectedRules = rejectedRules;
+    }
+
+    /**
+     * @param rules
+     *            IP地址或CIDR表示法的IP段，无效的规则将被忽略，可通过
+     *            {@link #getRejectedRules()} 获取
+     * @return
+     */
+    public static IPv4RuleSet compile(Collection<String> rules) {
+        Set<String> binaryRanges = new HashSet<String>();
+        List<String> rejected = new ArrayList<String>();
+        for (String rule: rules) {
+            String range = toBinaryRange(rule);
+            if (null == range) {
+                rejected.add(rule);
+            } else {
+                binaryRanges.add(range);
+            }
+        }
+        return compileBinaryRanges(binaryRanges,
+                Collections.unmodifiableList(rejected));
+    }
+
+    /**
+     * @param binaryRanges
+     *            二进制形式的IP地址或IP段的集合，如 {@link IPv4Util#getRFC1918IPSegments()}
+     * @return
+     */
+    public static IPv4RuleSet compileBinaryRanges(
+            Collection<String> binaryRanges) {
+        return compileBinaryRanges(binaryRanges,
+                Collections.<String> emptyList());
+    }
+
+    private static IPv4RuleSet compileBinaryRanges(
+            Collection<String> binaryRanges, List<String> rejectedRules) {
+        long[][] ranges = new long[binaryRanges.size()][];
+        int n = 0;
+        for (String range: binaryRanges) {
+            // 长度为0的前缀（/0）表示全部地址
+            if (null == range || range.length() > 32) {
+                continue;
+            }
+            StringBuilder low = new StringBuilder(32).append(range);
+            StringBuilder high = new StringBuilder(32).append(range);
+            while (low.length() < 32) {
+                low.append('0');
+                high.append('1');
+            }
+            ranges[n++] = new long[] { Long.parseLong(low.toString(), 2),
+                Long.parseLong(high.toString(), 2) };
+        }
+        if (0 == n) {
+            return rejectedRules.isEmpty() ? EMPTY : new IPv4RuleSet(
+                    new long[0], new long[0], 0, rejectedRules);
+        }
+
+        Arrays.sort(ranges, 0, n, new Comparator<long[]>() {
+            public int compare(long[] a, long[] b) {
+                return a[0] < b[0] ? -1 : (a[0] == b[0] ? 0 : 1);
+            }
+        });
+
+        // 合并重叠或相邻的区间
+        long[] starts = new long[n];
+        long[] ends = new long[n];
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            long[] range = ranges[i];
+            if (size > 0 && range[0] <= ends[size - 1] + 1) {
+                ends[size - 1] = Math.max(ends[size - 1], range[1]);
+            } else {
+                starts[size] = range[0];
+                ends[size] = range[1];
+                size++;
+            }
+        }
+        return new IPv4RuleSet(Arrays.copyOf(starts, size), Arrays.copyOf(
+                ends, size), n, rejectedRules);
+    }
+
+    /**
+     * 将IP地址或CIDR表示法的IP段转换为二进制前缀
+     *
+     * @param rule
+     * @return 无效的规则返回null
+     */
+    private static String toBinaryRange(String rule) {
+        if (null == rule) {
+            return null;
+        }
+        String ip = rule.trim();
+        int prefix = 32;
+        int index = ip.indexOf('/');
+        if (index != -1) {
+            try {
+                prefix = Integer.parseInt(ip.substring(index + 1).trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (prefix < 0 || prefix > 32) {
+                return null;
+            }
+            ip = IPv4Util.fillIP(ip.substring(0, index));
+        }
+        String binaryIP = IPv4Util.getBinaryIP(ip);
+        if (null == binaryIP) {
+            return null;
+        }
+        return binaryIP.substring(0, prefix);
+    }
+
+    /**
+     * 判断给定的 <code>ip</code> 是否在规则范围内
+     *
+     * @param ip
+     * @return 若 <code>ip</code> 不是一个有效的IP地址或不在规则范围内，返回false；其他返回true
+     */
+    public boolean contains(String ip) {
+        if (0 == starts.length) {
+            return false;
+        }
+        String binaryIP = IPv4Util.getBinaryIP(ip);
+        if (null == binaryIP) {
+            return false;
+        }
+        long value = Long.parseLong(binaryIP, 2);
+        int index = Arrays.binarySearch(starts, value);
+        if (index >= 0) {
+            return true;
+        }
+        // 插入点之前的区间是唯一可能包含value的区间
+        index = -index - 2;
+        return index >= 0 && value <= ends[index];
+    }
+
+    /**
+     * @return 编译时的有效规则数（去重后，合并前）
+     */
+    public int getRuleCount() {
+        return ruleCount;
+    }
+
+    /**
+     * @return 编译时被忽略的无效规则，不可修改
+     */
+    public List<String> getRejectedRules() {
+        return rejectedRules;
+    }
+
+    /**
+     * @return 合并后的地址区间数
+     */
+    public int getRangeCount() {
+        return starts.length;
+    }
+}
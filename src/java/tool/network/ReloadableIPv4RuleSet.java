@@ -0,0 +1,344 @@
+package tool.network;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 可热加载的IP规则集合，线程安全。
+ * <p>
+ * 规则文件每行一条规则，格式见 {@link IPv4RuleSet}（完整的IP地址或CIDR表示法的IP段），
+ * 空行及#之后的内容将被忽略，无效的规则会记录警告日志。调用 {@link #start()} 后，
+ * 后台线程定期检查文件，内容发生变化时重新编译规则，并以原子替换的方式发布新的
+ * {@link IPv4RuleSet}。读取方不加锁，也不会看到未编译完成的规则。加载失败时保留原有规则。
+ * <p>
+ * 更新规则文件时应先写入同目录下的临时文件，再通过重命名原子替换规则文件。若直接改写规则文件，
+ * 读取期间文件的修改时间或大小发生变化时本次不发布，下次检查时重试；但无法识别读取前已被
+ * 截断、尚未写完的文件。
+ */
+public class ReloadableIPv4RuleSet {
+    public static final long DEFAULT_CHECK_INTERVAL = 10000;
+
+    private static final Logger LOGGER = Logger
+            .getLogger(ReloadableIPv4RuleSet.class.getName());
+
+    /**
+     * 文件修改时间的精度，单位毫秒。JDK 10以前在Linux上只精确到秒；读取文件时若修改时间距今
+     * 不超过该值，同一精度内可能还有修改，下次检查时需重新读取并比较内容摘要
+     */
+    private static final long MODIFIED_TIME_RESOLUTION = 2000;
+
+    private static final int MAX_LOGGED_REJECTED_RULES = 10;
+
+    private final File file;
+
+    private final long checkInterval;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<Snapshot>(
+            new Snapshot(IPv4RuleSet.EMPTY, 0, 0, 0, 0, 0, 0, null));
+
+    private final Object reloadLock = new Object();
+
+    private volatile long failureCount;
+
+    private volatile Throwable lastFailure;
+
+    private ScheduledExecutorService scheduler;
+
+    public ReloadableIPv4RuleSet(File file) {
+        this(file, DEFAULT_CHECK_INTERVAL);
+    }
+
+    /**
+     * @param file
+     *            规则文件，UTF-8编码
+     * @param checkInterval
+     *            检查文件是否变化的间隔，单位毫秒
+     */
+    public ReloadableIPv4RuleSet(File file, long checkInterval) {
+        if (null == file) {
+            throw new IllegalArgumentException("file is null");
+        }
+        if (checkInterval < 1) {
+            throw new IllegalArgumentException(
+                    "checkInterval must be positive");
+        }
+        this.file = file;
+        this.checkInterval = checkInterval;
+    }
+
+    /**
+     * 同步加载一次规则文件，然后启动后台检查线程
+     *
+     * @throws IOException
+     *             首次加载失败
+     */
+    public synchronized void start() throws IOException {
+        if (null != scheduler) {
+            return;
+        }
+        reload();
+        scheduler = Executors
+                .newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "ipv4-rule-set-reloader-"
+                                + file.getName());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    reloadIfModified();
+                } catch (Throwable t) {
+                    // 任务抛出异常后不会再被调度，因此包括Error在内都在此记录，等待下一次检查
+                    failureCount++;
+                    lastFailure = t;
+                    LOGGER.log(Level.WARNING, "failed to reload ip rules from "
+                            + file, t);
+                }
+            }
+        }, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 停止后台检查线程，已发布的规则仍然可用
+     */
+    public synchronized void stop() {
+        if (null != scheduler) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * 判断给定的 <code>ip</code> 是否在当前规则范围内
+     *
+     * @param ip
+     * @return
+     */
+    public boolean contains(String ip) {
+        return snapshot.get().ruleSet.contains(ip);
+    }
+
+    /**
+     * @return 当前发布的规则，未加载时为 {@link IPv4RuleSet#EMPTY}
+     */
+    public IPv4RuleSet getRuleSet() {
+        return snapshot.get().ruleSet;
+    }
+
+    /**
+     * @return 当前规则的版本号，每次成功加载后加1，未加载时为0
+     */
+    public long getVersion() {
+        return snapshot.get().version;
+    }
+
+    /**
+     * @return 当前规则的加载完成时间（毫秒时间戳），未加载时为0
+     */
+    public long getLoadedAt() {
+        return snapshot.get().loadedAt;
+    }
+
+    /**
+     * @return 当前规则从读取文件到编译完成的耗时，单位微秒
+     */
+    public long getLoadMicros() {
+        return snapshot.get().loadMicros;
+    }
+
+    /**
+     * @return 后台加载失败的累计次数
+     */
+    public long getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * @return 最近一次后台加载失败的异常或错误，无失败时为null
+     */
+    public Throwable getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * 文件内容与当前规则不同时重新加载。修改时间和大小均未变化，且上次读取时修改时间已超出
+     * 其精度范围的，不再读取文件
+     *
+     * @return 是否发布了新规则
+     * @throws IOException
+     */
+    public boolean reloadIfModified() throws IOException {
+        Snapshot current = snapshot.get();
+        long sinceModified = current.readAt - current.fileModified;
+        if (file.lastModified() == current.fileModified
+                && file.length() == current.fileLength
+                && sinceModified > MODIFIED_TIME_RESOLUTION) {
+            return false;
+        }
+        return load(false);
+    }
+
+    /**
+     * 读取并编译规则文件，完成后发布新规则
+     *
+     * @throws IOException
+     *             读取失败，或读取期间文件被修改
+     */
+    public void reload() throws IOException {
+        if (!load(true)) {
+            throw new IOException("file changed while reading: " + file);
+        }
+    }
+
+    /**
+     * @param force
+     *            内容摘要未变化时是否仍然发布
+     * @return 是否发布了新规则；读取期间文件被修改或内容未变化时返回false
+     * @throws IOException
+     */
+    private boolean load(boolean force) throws IOException {
+        synchronized (reloadLock) {
+            long begin = System.nanoTime();
+            // 先记录读取时间和文件状态，再读取内容
+            long readAt = System.currentTimeMillis();
+            long fileModified = file.lastModified();
+            long fileLength = file.length();
+            byte[] content = readFile();
+            if (file.lastModified() != fileModified
+                    || file.length() != fileLength
+                    || content.length != fileLength) {
+                return false;
+            }
+            byte[] digest = digest(content);
+
+            Snapshot current = snapshot.get();
+            if (!force && Arrays.equals(digest, current.digest)) {
+                // 内容未变化，仅更新文件状态，避免重复读取
+                snapshot.set(new Snapshot(current.ruleSet, current.version,
+                        current.loadedAt, current.loadMicros, fileModified,
+                        fileLength, readAt, digest));
+                return false;
+            }
+
+            IPv4RuleSet ruleSet = IPv4RuleSet.compile(parseRules(content));
+            logRejectedRules(ruleSet);
+            long loadMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime()
+                    - begin);
+            snapshot.set(new Snapshot(ruleSet, current.version + 1, System
+                    .currentTimeMillis(), loadMicros, fileModified,
+                    fileLength, readAt, digest));
+            return true;
+        }
+    }
+
+    private byte[] readFile() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+                (int) Math.max(file.length(), 0));
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buf = new byte[8192];
+            int n;
+            while (-1 != (n = in.read(buf))) {
+                out.write(buf, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] digest(byte[] content) {
+        try {
+            return MessageDigest.getInstance("MD5").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static List<String> parseRules(byte[] content) throws IOException {
+        List<String> rules = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(content), "UTF-8"));
+        String line;
+        while (null != (line = reader.readLine())) {
+            int index = line.indexOf('#');
+            if (index != -1) {
+                line = line.substring(0, index);
+            }
+            line = line.trim();
+            if (line.length() == 0) {
+                continue;
+            }
+            rules.add(line);
+        }
+        return rules;
+    }
+
+    private void logRejectedRules(IPv4RuleSet ruleSet) {
+        List<String> rejected = ruleSet.getRejectedRules();
+        if (rejected.isEmpty()) {
+            return;
+        }
+        List<String> logged = rejected;
+        if (rejected.size() > MAX_LOGGED_REJECTED_RULES) {
+            logged = rejected.subList(0, MAX_LOGGED_REJECTED_RULES);
+        }
+        LOGGER.warning(rejected.size() + " invalid ip rules ignored in "
+                + file + ": " + logged);
+    }
+
+    private static final class Snapshot {
+        final IPv4RuleSet ruleSet;
+
+        final long version;
+
+        final long loadedAt;
+
+        final long loadMicros;
+
+        final long fileModified;
+
+        final long fileLength;
+
+        /**
+         * 读取文件前的时间戳，用于判断修改时间是否已超出其精度范围
+         */
+        final long readAt;
+
+        final byte[] digest;
+
+        Snapshot(IPv4RuleSet ruleSet, long version, long loadedAt,
+                long loadMicros, long fileModified, long fileLength,
+                long readAt, byte[] digest) {
+            this.ruleSet = ruleSet;
+            this.version = version;
+            this.loadedAt = loadedAt;
+            this.loadMicros = loadMicros;
+            this.fileModified = fileModified;
+            this.fileLength = fileLength;
+            this.readAt = readAt;
+            this.digest = digest;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package tool.security;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * 线程安全的随机密码生成器。每个线程持有独立的 {@link PasswordGenerator} 及缓冲区。
+ * <p>
+ * 默认的 SecureRandom（Linux 上为 NativePRNG）所有实例共享同一个全局锁，因此每个线程使用
+ * 各自的 SecureRandom 实例，依次尝试 DRBG（JDK 9及以上）、SHA1PRNG，都不可用时使用默认实现。
+ * 创建时从默认随机源读取一次种子，之后并发调用不再竞争同一个锁。
+ * <p>
+ * 每个实例在每个使用过它的线程中各保留一个生成器（含缓冲区），应作为长期存在的共享对象使用，
+ * 不要每次使用时新建。
+ */
+public class ConcurrentPasswordGenerator {
+    private static final SecureRandom SEED_SOURCE = new SecureRandom();
+
+    private static final int SEED_SIZE = 32;
+
+    /**
+     * 按优先级排列的线程私有随机源算法，项目以1.6编译，只能按名称选择
+     */
+    private static final String[] THREAD_RANDOM_ALGORITHMS = { "DRBG",
+        "SHA1PRNG" };
+
+    private final String chars;
+
+    private final int length;
+
+    private final int bufferSize;
+
+    private final ThreadLocal<PasswordGenerator> generators = new ThreadLocal<PasswordGenerator>() {
+        @Override
+        protected PasswordGenerator initialValue() {
+            return new PasswordGenerator(newThreadRandom(), chars, length,
+                    bufferSize);
+        }
+    };
+
+    public ConcurrentPasswordGenerator() {
+        this(PasswordGenerator.DEFAULT_LENGTH);
+    }
+
+    /**
+     * @param length
+     *            生成的密码长度
+     */
+    public ConcurrentPasswordGenerator(int length) {
+        this(PasswordGenerator.DEFAULT_CHARS, length);
+    }
+
+    /**
+     * @param chars
+     *            密码字符集，长度为1~256，且不能包含重复字符
+     * @param length
+     *            生成的密码长度
+     */
+    public ConcurrentPasswordGenerator(String chars, int length) {
+        this(chars, length, PasswordGenerator.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param chars
+     *            密码字符集，长度为1~256，且不能包含重复字符
+     * @param length
+     *            生成的密码长度
+     * @param bufferSize
+     *            每个线程每次读取的随机字节数
+     */
+    public ConcurrentPasswordGenerator(String chars, int length, int bufferSize) {
+        // 提前校验参数，避免在各线程首次调用时才抛出异常
+        PasswordGenerator.checkArguments(chars, length, bufferSize);
+        this.chars = chars;
+        this.length = length;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * 生成一个随机密码
+     *
+     * @return
+     */
+    public String generate() {
+        return generators.get().generate();
+    }
+
+    /**
+     * @see PasswordGenerator#fill(char[], int, int)
+     */
+    public void fill(char[] dest, int offset, int len) {
+        generators.get().fill(dest, offset, len);
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    private static SecureRandom newThreadRandom() {
+        byte[] seed = new byte[SEED_SIZE];
+        SEED_SOURCE.nextBytes(seed);
+        for (String algorithm: THREAD_RANDOM_ALGORITHMS) {
+            try {
+                SecureRandom random = SecureRandom.getInstance(algorithm);
+                // DRBG会自行取种子，此处的种子作为补充；SHA1PRNG在首次取随机数前设置种子后
+                // 不会再从系统随机源自行取种子
+                random.setSeed(seed);
+                return random;
+            } catch (NoSuchAlgorithmException e) {
+                // 尝试下一个算法
+            }
+        }
+        return new SecureRandom(seed);
+    }
+}
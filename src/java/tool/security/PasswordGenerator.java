@@ -0,0 +1,150 @@
+package tool.security;
+
+import java.security.SecureRandom;
+
+/**
+ * 随机密码/令牌生成器，与 src/perl/randpwd 使用相同的字符集（去除了易混淆的字符），但以
+ * {@link SecureRandom} 作为随机源，并通过拒绝采样保证每个字符等概率出现。
+ * <p>
+ * 随机字节按块从 {@link SecureRandom} 中批量读取到复用的缓冲区，适合批量生成大量密码。
+ * 非线程安全；多线程并发调用请使用 {@link ConcurrentPasswordGenerator}。
+ */
+public class PasswordGenerator {
+    /**
+     * 默认字符集，去掉了 0、1、I、O、i、l、o 等容易混淆的字符
+     */
+    public static final String DEFAULT_CHARS = "23456789ABCDEFGHJKLMNPQRSTUVWXYZabcdefghjkmnpqrstuvwxyz";
+
+    public static final int DEFAULT_LENGTH = 8;
+
+    public static final int DEFAULT_BUFFER_SIZE = 4096;
+
+    private final SecureRandom random;
+
+    private final char[] chars;
+
+    private final int length;
+
+    /**
+     * 单个随机字节（0~255）小于该值时才被采用，保证取模后各字符等概率
+     */
+    private final int acceptBound;
+
+    private final byte[] buffer;
+
+    private int position;
+
+    public PasswordGenerator() {
+        this(DEFAULT_LENGTH);
+    }
+
+    /**
+     * @param length
+     *            生成的密码长度
+     */
+    public PasswordGenerator(int length) {
+        this(DEFAULT_CHARS, length);
+    }
+
+    /**
+     * @param chars
+     *            密码字符集，长度为1~256，且不能包含重复字符
+     * @param length
+     *            生成的密码长度
+     */
+    public PasswordGenerator(String chars, int length) {
+        this(new SecureRandom(), chars, length, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param random
+     *            随机源
+     * @param chars
+     *            密码字符集，长度为1~256，且不能包含重复字符
+     * @param length
+     *            生成的密码长度
+     * @param bufferSize
+     *            每次从 <code>random</code> 读取的随机字节数
+     */
+    public PasswordGenerator(SecureRandom random, String chars, int length,
+            int bufferSize) {
+        if (null == random) {
+            throw new IllegalArgumentException("random is null");
+        }
+        checkArguments(chars, length, bufferSize);
+        this.random = random;
+        this.chars = chars.toCharArray();
+        this.length = length;
+        this.acceptBound = 256 - 256 % this.chars.length;
+        this.buffer = new byte[bufferSize];
+        this.position = bufferSize;
+    }
+
+    /**
+     * 校验构造参数，不合法时抛出 {@link IllegalArgumentException}
+     */
+    static void checkArguments(String chars, int length, int bufferSize) {
+        if (null == chars || chars.length() < 1 || chars.length() > 256) {
+            throw new IllegalArgumentException(
+                    "chars length must between 1 and 256");
+        }
+        for (int i = 0; i < chars.length(); i++) {
+            if (chars.indexOf(chars.charAt(i), i + 1) != -1) {
+                throw new IllegalArgumentException("duplicate char in chars: "
+                        + chars.charAt(i));
+            }
+        }
+        if (length < 1) {
+            throw new IllegalArgumentException("length must be positive");
+        }
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize must be positive");
+        }
+    }
+
+    /**
+     * 生成一个随机密码
+     *
+     * @return
+     */
+    public String generate() {
+        char[] pwd = new char[length];
+        fill(pwd, 0, length);
+        return new String(pwd);
+    }
+
+    /**
+     * 用随机字符填充 <code>dest</code> 中从 <code>offset</code> 开始的 <code>len</code>
+     * 个位置，可复用 <code>dest</code> 以避免批量生成时的内存分配
+     *
+     * @param dest
+     * @param offset
+     * @param len
+     */
+    public void fill(char[] dest, int offset, int len) {
+        if (offset < 0 || len < 0 || len > dest.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+        int end = offset + len;
+        for (int i = offset; i < end; i++) {
+            dest[i] = chars[nextIndex()];
+        }
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    private int nextIndex() {
+        while (true) {
+            if (position == buffer.length) {
+                random.nextBytes(buffer);
+                position = 0;
+            }
+            int n = buffer[position++] & 0xFF;
+            if (n < acceptBound) {
+                return n % chars.length;
+            }
+        }
+    }
+}